@@ -0,0 +1,777 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coordinator for SUMMA matrix multiplication over MatrixWorker processes.
+ *
+ * Workers form a fixed gridRows x gridCols process grid. Operands are scattered once as
+ * blockSize x blockSize blocks, block (bi, bj) going to grid position (bi mod gridRows, bj mod gridCols),
+ * and stay on the workers. For every k-step the owners of A's block column k send it along their
+ * process row and the owners of B's block row k send it along their process column; each position
+ * adds the products into the C blocks it owns. Panels travel worker to worker with a small lookahead,
+ * so communication overlaps computation and the coordinator is not on the data path.
+ *
+ * The coordinator only holds DistributedMatrix handles. Operands can be streamed in from a BlockSource
+ * and results streamed out row panel by row panel, so no JVM needs the full A, B and C at once.
+ * The Matrix convenience overload of dot() naturally does materialize all three.
+ *
+ * A worker that dies or stops making progress within the timeout is dropped. Its grid positions move to
+ * the remaining workers, the blocks it held are rebuilt from their lineage (re-read from the source or
+ * recomputed), and the interrupted multiplication is run again.
+ */
+public class DistributedDot implements AutoCloseable {
+    /**
+     * Supplies the sub-matrix [r0, r1) x [c0, c1) of an operand, e.g. read from a file or generated.
+     * It may be asked for the same block again when a worker holding it fails.
+     */
+    interface BlockSource {
+        Matrix block(int r0, int r1, int c0, int c1);
+    }
+
+    /**
+     * Receives consecutive row panels of a gathered matrix; r0 is the first row of the panel.
+     */
+    interface RowPanelSink {
+        void accept(int r0, Matrix panel);
+    }
+
+    /**
+     * Called on a coordinator thread each time a worker finishes a k-step for one of its grid positions.
+     * The coordinator is busy with the multiplication at that point, so the listener must not call back into it.
+     */
+    interface ProgressListener {
+        void step(int worker, int position, int step);
+    }
+
+    // How long launchLocal waits for a worker to announce its port
+    static final int STARTUP_TIMEOUT_MILLIS = 30000;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final int gridRows;
+    private final int gridCols;
+    private final int[] host; // grid position -> index into workers
+    private final List<DistributedMatrix> live = new ArrayList<>();
+    private final List<Throwable> failures = new ArrayList<>();
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+    private final Thread watchdog;
+    private long nextId = 1;
+    private int blockSize = 256;
+    private volatile int timeoutMillis = 30000;
+    private volatile ProgressListener listener;
+
+    /**
+     * Creates a coordinator for workers that are already running.
+     */
+    DistributedDot(List<InetSocketAddress> addresses){
+        if(addresses.isEmpty()) {
+            throw new RuntimeException("At least one worker is required");
+        }
+        for(InetSocketAddress address : addresses){
+            workers.add(new Worker(workers.size(), address));
+        }
+        // The most square grid that uses every worker
+        int n = workers.size();
+        int rows = (int) Math.sqrt(n);
+        while(n % rows != 0) rows--;
+        gridRows = rows;
+        gridCols = n / rows;
+        host = new int[n];
+        for(int p=0; p<n; p++){
+            host[p] = p;
+        }
+
+        watchdog = new Thread(() -> {
+            while(true){
+                long now = System.nanoTime();
+                for(Link link : links) link.closeIfExpired(now);
+                try {
+                    Thread.sleep(Math.max(1, Math.min(timeoutMillis / 4, 100)));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    /**
+     * Starts n MatrixWorker processes on this machine using the current classpath.
+     * The processes are destroyed when the coordinator is closed, and exit on their own if this JVM dies.
+     */
+    public static DistributedDot launchLocal(int n) throws IOException {
+        if(n < 1) {
+            throw new RuntimeException("At least one worker is required");
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+        List<Process> started = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for(int i=0; i<n; i++){
+                Process p = new ProcessBuilder(java, "-cp", classpath, "MatrixWorker", "0")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                started.add(p);
+                int port = readPort(p);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+        } catch (IOException | RuntimeException e) {
+            for(Process p : started) p.destroyForcibly();
+            throw e;
+        }
+        DistributedDot d = new DistributedDot(addresses);
+        for(int i=0; i<n; i++){
+            d.workers.get(i).process = started.get(i);
+        }
+        return d;
+    }
+
+    /**
+     * Waits for the "PORT <n>" line a worker prints on startup.
+     */
+    private static int readPort(Process p) throws IOException {
+        CompletableFuture<String> line = new CompletableFuture<>();
+        Thread reader = new Thread(() -> {
+            try {
+                line.complete(new BufferedReader(new InputStreamReader(p.getInputStream())).readLine());
+            } catch (IOException e) {
+                line.completeExceptionally(e);
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+
+        String announced;
+        try {
+            announced = line.get(STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("Worker did not report its port in time");
+        } catch (ExecutionException e) {
+            throw new IOException("Worker failed to start", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting worker");
+        }
+        if(announced == null || !announced.startsWith("PORT ")) {
+            throw new IOException("Worker failed to start: " + announced);
+        }
+        return Integer.parseInt(announced.substring(5).trim());
+    }
+
+    /**
+     * Sets the edge length of the blocks used by later scatters.
+     */
+    DistributedDot blockSize(int blockSize){
+        if(blockSize < 1) {
+            throw new RuntimeException("Block size must be positive");
+        }
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Sets how long a worker may go without answering or reporting progress before it is treated as failed.
+     */
+    DistributedDot timeout(int timeoutMillis){
+        if(timeoutMillis < 1) {
+            throw new RuntimeException("Timeout must be positive");
+        }
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    DistributedDot onProgress(ProgressListener listener){
+        this.listener = listener;
+        return this;
+    }
+
+    List<Process> processes(){
+        List<Process> result = new ArrayList<>();
+        for(Worker w : workers){
+            if(w.process != null) result.add(w.process);
+        }
+        return result;
+    }
+
+    int[] gridShape(){
+        return new int[]{gridRows, gridCols};
+    }
+
+    synchronized int liveWorkers(){
+        return aliveWorkers().size();
+    }
+
+    // --- PUBLIC OPERATIONS ---
+
+    /**
+     * Computes a.dot(b) on the workers. All three matrices pass through this JVM;
+     * use the DistributedMatrix overloads to keep them out of it.
+     */
+    Matrix dot(Matrix a, Matrix b){
+        if(a.cols != b.rows) {
+            throw new RuntimeException("Incompatible shapes");
+        }
+        DistributedMatrix da = scatter(a);
+        try {
+            DistributedMatrix db = scatter(b);
+            try {
+                DistributedMatrix dc = dot(da, db);
+                try {
+                    return dc.toMatrix();
+                } finally {
+                    free(dc);
+                }
+            } finally {
+                free(db);
+            }
+        } finally {
+            free(da);
+        }
+    }
+
+    /**
+     * Distributes m over the workers. The handle keeps m as its source for rebuilding lost blocks.
+     */
+    DistributedMatrix scatter(Matrix m){
+        return scatter(m.rows, m.cols, (r0, r1, c0, c1) -> block(m, r0, r1, c0, c1));
+    }
+
+    /**
+     * Distributes a rows x cols matrix whose blocks are read from source, without materializing it here.
+     */
+    synchronized DistributedMatrix scatter(int rows, int cols, BlockSource source){
+        if(rows < 0 || cols < 0) {
+            throw new RuntimeException("Invalid shape");
+        }
+        DistributedMatrix m = new DistributedMatrix(this, nextId++, rows, cols, blockSize, source, null, null);
+        live.add(m);
+        // Nothing is stored yet, so every position starts out lost
+        for(int p=0; p<host.length; p++){
+            m.lost.add(p);
+        }
+        withRecovery(() -> ensure(m));
+        return m;
+    }
+
+    /**
+     * Multiplies two distributed matrices with SUMMA. The result stays on the workers.
+     */
+    synchronized DistributedMatrix dot(DistributedMatrix a, DistributedMatrix b){
+        check(a);
+        check(b);
+        if(a.cols != b.rows) {
+            throw new RuntimeException("Incompatible shapes");
+        }
+        if(a.blockSize != b.blockSize) {
+            throw new RuntimeException("Operands use different block sizes");
+        }
+        DistributedMatrix c = new DistributedMatrix(this, nextId++, a.rows, b.cols, a.blockSize, null, a, b);
+        live.add(c);
+        runDot(a, b, c);
+        return c;
+    }
+
+    synchronized void gather(DistributedMatrix m, RowPanelSink sink){
+        check(m);
+        int bs = m.blockSize;
+        int gridR = DistributedMatrix.blockCount(m.rows, bs);
+        int gridC = DistributedMatrix.blockCount(m.cols, bs);
+        for(int bi=0; bi<gridR; bi++){
+            int r0 = DistributedMatrix.blockStart(bi, bs);
+            Matrix panel = new Matrix(DistributedMatrix.blockEnd(bi, bs, m.rows) - r0, m.cols);
+            int row = bi;
+            withRecovery(() -> {
+                ensure(m);
+                for(int bj=0; bj<gridC; bj++){
+                    Matrix block = get(m, row, bj);
+                    int c0 = DistributedMatrix.blockStart(bj, bs);
+                    for(int i=0; i<block.rows; i++){
+                        System.arraycopy(block.data, i * block.cols, panel.data, i * m.cols + c0, block.cols);
+                    }
+                }
+            });
+            sink.accept(r0, panel);
+        }
+    }
+
+    synchronized void free(DistributedMatrix m){
+        if(m.owner != this || m.freed) return;
+        m.freed = true;
+        live.remove(m);
+        for(Worker w : aliveWorkers()){
+            try {
+                call(w, (in, out) -> {
+                    out.writeByte(MatrixWorker.FREE);
+                    out.writeLong(m.id);
+                    out.flush();
+                    expect(in, MatrixWorker.ACK);
+                    return null;
+                });
+            } catch (WorkerFailure f) {
+                drop(f.worker, f.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops any worker processes started by launchLocal.
+     */
+    public synchronized void close(){
+        watchdog.interrupt();
+        for(Worker w : workers){
+            closeQuietly(w.control);
+            w.control = null;
+            if(w.process != null) w.process.destroyForcibly();
+        }
+    }
+
+    // --- SUMMA RUNS ---
+
+    private void runDot(DistributedMatrix a, DistributedMatrix b, DistributedMatrix c){
+        int fruitless = 0;
+        while(true){
+            withRecovery(() -> {
+                ensure(a);
+                ensure(b);
+            });
+            int alive = aliveWorkers().size();
+            Throwable failure = attemptRun(a, b, c);
+            if(failure == null) {
+                c.lost.clear();
+                return;
+            }
+            failures.add(failure);
+            // Find out which workers are actually gone; stalled peers of a dead worker still answer
+            probe();
+            if(aliveWorkers().size() == alive && ++fruitless > workers.size()) {
+                RuntimeException e = new RuntimeException("Distributed multiplication keeps failing", failure);
+                for(Throwable t : failures) if(t != failure) e.addSuppressed(t);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs one SUMMA multiplication on the current grid. Returns null on success or the first worker failure.
+     */
+    private Throwable attemptRun(DistributedMatrix a, DistributedMatrix b, DistributedMatrix c){
+        MatrixWorker.Plan plan = new MatrixWorker.Plan();
+        plan.runId = nextId++;
+        plan.gridRows = gridRows;
+        plan.gridCols = gridCols;
+        plan.timeoutMillis = timeoutMillis;
+        plan.idA = a.id;
+        plan.idB = b.id;
+        plan.idC = c.id;
+        plan.m = a.rows;
+        plan.k = a.cols;
+        plan.n = b.cols;
+        plan.blockSize = a.blockSize;
+        plan.hosts = new InetSocketAddress[host.length];
+        for(int p=0; p<host.length; p++){
+            plan.hosts[p] = workers.get(host[p]).address;
+        }
+
+        RunLinks run = new RunLinks();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReference<Throwable> fatal = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for(Worker w : aliveWorkers()){
+            List<Integer> mine = new ArrayList<>();
+            for(int p=0; p<host.length; p++){
+                if(host[p] == w.index) mine.add(p);
+            }
+            if(mine.isEmpty()) continue;
+            Thread t = new Thread(() -> {
+                Link link = null;
+                try {
+                    link = open(w, MatrixWorker.RUN);
+                    run.add(link);
+                    plan.write(link.out, mine.stream().mapToInt(Integer::intValue).toArray());
+                    link.out.flush();
+                    int pending = mine.size();
+                    while(pending > 0){
+                        link.arm(timeoutMillis);
+                        byte op = link.in.readByte();
+                        int position = link.in.readInt();
+                        if(op == MatrixWorker.PROGRESS) {
+                            int step = link.in.readInt();
+                            ProgressListener l = listener;
+                            if(l != null) l.step(w.index, position, step);
+                        } else if(op == MatrixWorker.DONE) {
+                            pending--;
+                        } else if(op == MatrixWorker.FAILED) {
+                            throw new IOException(String.format("Worker %d failed at position %d: %s", w.index, position, link.in.readUTF()));
+                        } else {
+                            throw new IOException("Unexpected reply from worker " + w.index);
+                        }
+                    }
+                    link.disarm();
+                } catch (IOException e) {
+                    failure.compareAndSet(null, describe(w, link, e));
+                    run.abort();
+                } catch (RuntimeException | Error e) {
+                    fatal.compareAndSet(null, e);
+                    run.abort();
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+
+        try {
+            for(Thread t : threads){
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.abort();
+            throw new RuntimeException("Interrupted while waiting for workers");
+        } finally {
+            // Closing the run connections ends the run on every worker
+            run.abort();
+        }
+        Throwable f = fatal.get();
+        if(f instanceof Error) throw (Error) f;
+        if(f != null) throw (RuntimeException) f;
+        return failure.get();
+    }
+
+    /**
+     * The run connections of one attempt. Aborting closes them all, including ones opened afterwards.
+     */
+    private final class RunLinks {
+        private final List<Link> open = new ArrayList<>();
+        private boolean aborted;
+
+        synchronized void add(Link link){
+            if(aborted) {
+                closeQuietly(link);
+            } else {
+                open.add(link);
+            }
+        }
+
+        synchronized void abort(){
+            aborted = true;
+            for(Link link : open) closeQuietly(link);
+            open.clear();
+        }
+    }
+
+    // --- LINEAGE AND RECOVERY ---
+
+    private void check(DistributedMatrix m){
+        if(m.owner != this) {
+            throw new RuntimeException("Matrix belongs to another coordinator");
+        }
+        if(m.freed) {
+            throw new RuntimeException("Matrix has been freed");
+        }
+    }
+
+    /**
+     * Rebuilds the blocks of m that sit on grid positions marked as lost.
+     */
+    private void ensure(DistributedMatrix m) throws WorkerFailure {
+        check(m);
+        if(m.lost.isEmpty()) return;
+        if(m.source == null) {
+            // Products are recomputed as a whole from their operands
+            runDot(m.left, m.right, m);
+            return;
+        }
+        int bs = m.blockSize;
+        int gridR = DistributedMatrix.blockCount(m.rows, bs);
+        int gridC = DistributedMatrix.blockCount(m.cols, bs);
+        for(int p : new ArrayList<>(m.lost)){
+            for(int bi : MatrixWorker.owned(gridR, p / gridCols, gridRows)){
+                for(int bj : MatrixWorker.owned(gridC, p % gridCols, gridCols)){
+                    put(m, bi, bj);
+                }
+            }
+            m.lost.remove(p);
+        }
+    }
+
+    /**
+     * Runs step until it completes, dropping the worker behind every failure.
+     * Ends with "All workers failed" once none are left.
+     */
+    private void withRecovery(Step step){
+        while(true){
+            try {
+                step.run();
+                return;
+            } catch (WorkerFailure f) {
+                drop(f.worker, f.getCause());
+            }
+        }
+    }
+
+    private interface Step {
+        void run() throws WorkerFailure;
+    }
+
+    /**
+     * Pings every live worker and drops the ones that do not answer in time.
+     */
+    private void probe(){
+        for(Worker w : aliveWorkers()){
+            try {
+                call(w, (in, out) -> {
+                    out.writeByte(MatrixWorker.PING);
+                    out.flush();
+                    expect(in, MatrixWorker.ACK);
+                    return null;
+                });
+            } catch (WorkerFailure f) {
+                drop(f.worker, f.getCause());
+            }
+        }
+    }
+
+    /**
+     * Removes a worker: its grid positions move to the least loaded remaining workers
+     * and every live matrix marks the blocks of those positions as lost.
+     */
+    private void drop(Worker w, Throwable cause){
+        if(!w.alive) return;
+        w.alive = false;
+        failures.add(cause);
+        closeQuietly(w.control);
+        w.control = null;
+        if(w.process != null) w.process.destroyForcibly();
+
+        List<Worker> alive = aliveWorkers();
+        if(alive.isEmpty()) {
+            RuntimeException e = new RuntimeException("All workers failed", failures.get(0));
+            for(int i=1; i<failures.size(); i++) e.addSuppressed(failures.get(i));
+            throw e;
+        }
+        int[] load = new int[workers.size()];
+        for(int p=0; p<host.length; p++) load[host[p]]++;
+        for(int p=0; p<host.length; p++){
+            if(host[p] != w.index) continue;
+            Worker target = alive.get(0);
+            for(Worker candidate : alive){
+                if(load[candidate.index] < load[target.index]) target = candidate;
+            }
+            host[p] = target.index;
+            load[target.index]++;
+            for(DistributedMatrix m : live) m.lost.add(p);
+        }
+    }
+
+    private List<Worker> aliveWorkers(){
+        List<Worker> result = new ArrayList<>();
+        for(Worker w : workers){
+            if(w.alive) result.add(w);
+        }
+        return result;
+    }
+
+    // --- BLOCK TRANSFER ---
+
+    private void put(DistributedMatrix m, int bi, int bj) throws WorkerFailure {
+        int bs = m.blockSize;
+        int r0 = DistributedMatrix.blockStart(bi, bs);
+        int r1 = DistributedMatrix.blockEnd(bi, bs, m.rows);
+        int c0 = DistributedMatrix.blockStart(bj, bs);
+        int c1 = DistributedMatrix.blockEnd(bj, bs, m.cols);
+        Matrix block = m.source.block(r0, r1, c0, c1);
+        if(block.rows != r1 - r0 || block.cols != c1 - c0) {
+            throw new RuntimeException("Block source returned a block of the wrong shape");
+        }
+        call(owner(bi, bj), (in, out) -> {
+            out.writeByte(MatrixWorker.PUT);
+            out.writeLong(m.id);
+            out.writeInt(bi);
+            out.writeInt(bj);
+            MatrixWorker.writeBlock(out, block);
+            out.flush();
+            expect(in, MatrixWorker.ACK);
+            return null;
+        });
+    }
+
+    private Matrix get(DistributedMatrix m, int bi, int bj) throws WorkerFailure {
+        Matrix block = call(owner(bi, bj), (in, out) -> {
+            out.writeByte(MatrixWorker.GET);
+            out.writeLong(m.id);
+            out.writeInt(bi);
+            out.writeInt(bj);
+            out.flush();
+            byte reply = in.readByte();
+            return reply == MatrixWorker.BLOCK ? MatrixWorker.readBlock(in) : null;
+        });
+        int bs = m.blockSize;
+        if(block == null) {
+            throw new RuntimeException(String.format("Block (%d, %d) of matrix %d is missing on its worker", bi, bj, m.id));
+        }
+        if(block.rows != DistributedMatrix.blockEnd(bi, bs, m.rows) - DistributedMatrix.blockStart(bi, bs)
+                || block.cols != DistributedMatrix.blockEnd(bj, bs, m.cols) - DistributedMatrix.blockStart(bj, bs)) {
+            throw new RuntimeException("Worker returned a block of the wrong shape");
+        }
+        return block;
+    }
+
+    private Worker owner(int bi, int bj){
+        return workers.get(host[(bi % gridRows) * gridCols + bj % gridCols]);
+    }
+
+    /**
+     * Copies the sub-matrix [r0, r1) x [c0, c1) into a new matrix.
+     */
+    static Matrix block(Matrix m, int r0, int r1, int c0, int c1){
+        Matrix result = new Matrix(r1 - r0, c1 - c0);
+        for(int i=r0; i<r1; i++){
+            System.arraycopy(m.data, i * m.cols + c0, result.data, (i - r0) * result.cols, result.cols);
+        }
+        return result;
+    }
+
+    // --- CONNECTIONS ---
+
+    private static final class Worker {
+        final int index;
+        final InetSocketAddress address;
+        Process process;
+        boolean alive = true;
+        Link control;
+
+        Worker(int index, InetSocketAddress address){
+            this.index = index;
+            this.address = address;
+        }
+    }
+
+    /**
+     * A connection to one worker together with the deadline of the exchange in progress.
+     * The watchdog closes the socket once the deadline passes, which unblocks any pending read or write.
+     */
+    private static final class Link {
+        final Socket socket = new Socket();
+        DataInputStream in;
+        DataOutputStream out;
+        volatile long deadline; // System.nanoTime() limit, 0 while idle
+        volatile boolean expired;
+
+        void arm(int timeoutMillis){
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        void disarm(){
+            deadline = 0;
+        }
+
+        void closeIfExpired(long now){
+            long d = deadline;
+            if(d != 0 && now - d > 0) {
+                expired = true;
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+
+    private interface Exchange<T> {
+        T run(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Thrown when talking to a worker fails; the caller drops the worker and retries.
+     */
+    private static final class WorkerFailure extends Exception {
+        private static final long serialVersionUID = 1L;
+        final Worker worker;
+
+        WorkerFailure(Worker worker, IOException cause){
+            super(cause.getMessage(), cause);
+            this.worker = worker;
+        }
+    }
+
+    private Link open(Worker w, byte type) throws IOException {
+        Link link = new Link();
+        links.add(link);
+        try {
+            link.arm(timeoutMillis);
+            link.socket.connect(w.address, timeoutMillis);
+            link.socket.setTcpNoDelay(true);
+            link.in = new DataInputStream(new BufferedInputStream(link.socket.getInputStream()));
+            link.out = new DataOutputStream(new BufferedOutputStream(link.socket.getOutputStream()));
+            link.out.writeByte(type);
+            link.disarm();
+            return link;
+        } catch (IOException e) {
+            closeQuietly(link);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs one request/reply exchange on the worker's control connection under the timeout.
+     */
+    private <T> T call(Worker w, Exchange<T> exchange) throws WorkerFailure {
+        Link link = w.control;
+        try {
+            if(link == null) {
+                link = open(w, MatrixWorker.CONTROL);
+                w.control = link;
+            }
+            link.arm(timeoutMillis);
+            T result = exchange.run(link.in, link.out);
+            link.disarm();
+            return result;
+        } catch (IOException e) {
+            throw new WorkerFailure(w, describe(w, link, e));
+        }
+    }
+
+    private IOException describe(Worker w, Link link, IOException e){
+        if(link != null && link.expired) {
+            return new IOException(String.format("Worker %d did not respond within %d ms", w.index, timeoutMillis), e);
+        }
+        return new IOException(String.format("Worker %d: %s", w.index, e.getMessage()), e);
+    }
+
+    private static void expect(DataInputStream in, byte reply) throws IOException {
+        if(in.readByte() != reply) {
+            throw new IOException("Unexpected reply from worker");
+        }
+    }
+
+    private void closeQuietly(Link link){
+        if(link == null) return;
+        links.remove(link);
+        link.disarm();
+        try {
+            link.socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Measures how DistributedDot scales with the number of local worker processes.
+ *
+ * Usage: java DistributedDotBenchmark [size] [maxWorkers] [blockSize]
+ * Multiplies two random size x size matrices with 1..maxWorkers workers and reports the time of the
+ * SUMMA multiplication itself (operands already scattered, result left on the workers) and the speedup
+ * over one worker. Scatter and gather are timed separately since they go through the coordinator.
+ */
+public class DistributedDotBenchmark {
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int maxWorkers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int blockSize = args.length > 2 ? Integer.parseInt(args[2]) : 128;
+
+        Matrix a = Matrix.random(size, size);
+        Matrix b = Matrix.random(size, size);
+        System.out.printf("%d x %d, block %d, %d cores%n", size, size, blockSize, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %6s %10s %10s %8s%n", "workers", "grid", "dot ms", "io ms", "speedup");
+
+        double base = 0;
+        for (int workers = 1; workers <= maxWorkers; workers++) {
+            try (DistributedDot d = DistributedDot.launchLocal(workers).blockSize(blockSize)) {
+                long t0 = System.nanoTime();
+                DistributedMatrix da = d.scatter(a);
+                DistributedMatrix db = d.scatter(b);
+                long io = System.nanoTime() - t0;
+
+                // The first run warms up the JIT in every worker
+                da.dot(db).free();
+                long t1 = System.nanoTime();
+                DistributedMatrix dc = da.dot(db);
+                double ms = (System.nanoTime() - t1) / 1e6;
+
+                long t2 = System.nanoTime();
+                dc.gather((r0, panel) -> { });
+                io += System.nanoTime() - t2;
+
+                if (workers == 1) base = ms;
+                int[] grid = d.gridShape();
+                System.out.printf("%8d %6s %10.1f %10.1f %8.2f%n", workers, grid[0] + "x" + grid[1], ms, io / 1e6, base / ms);
+            }
+        }
+    }
+}
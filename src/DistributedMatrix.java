@@ -0,0 +1,93 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Handle to a matrix whose blocks live on the workers of a DistributedDot.
+ * The matrix is cut into blockSize x blockSize blocks and block (bi, bj) is kept by the worker
+ * playing grid position (bi mod gridRows, bj mod gridCols), so no single JVM holds the whole matrix.
+ *
+ * Every handle remembers how its blocks were made: either read from a BlockSource or computed
+ * as the product of two other handles. Blocks lost with a failed worker are rebuilt from that
+ * lineage the next time the handle is used.
+ */
+public class DistributedMatrix {
+    final DistributedDot owner;
+    final long id;
+    final int rows;
+    final int cols;
+    final int blockSize;
+
+    // Lineage: exactly one of source or (left, right) is set
+    final DistributedDot.BlockSource source;
+    final DistributedMatrix left;
+    final DistributedMatrix right;
+
+    // Grid positions whose blocks were lost and have not been rebuilt yet
+    final Set<Integer> lost = new HashSet<>();
+    boolean freed;
+
+    DistributedMatrix(DistributedDot owner, long id, int rows, int cols, int blockSize,
+                      DistributedDot.BlockSource source, DistributedMatrix left, DistributedMatrix right){
+        this.owner = owner;
+        this.id = id;
+        this.rows = rows;
+        this.cols = cols;
+        this.blockSize = blockSize;
+        this.source = source;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Returns the dimensions of the matrix.
+     */
+    int[] shape() {
+        return new int[]{rows, cols};
+    }
+
+    /**
+     * Multiplies this matrix by m on the workers. The result stays distributed.
+     */
+    DistributedMatrix dot(DistributedMatrix m){
+        return owner.dot(this, m);
+    }
+
+    /**
+     * Streams the matrix to sink one block row at a time, top to bottom.
+     * Only one row panel is held by the caller at any time.
+     */
+    void gather(DistributedDot.RowPanelSink sink){
+        owner.gather(this, sink);
+    }
+
+    /**
+     * Collects the whole matrix into this JVM.
+     */
+    Matrix toMatrix(){
+        Matrix result = new Matrix(rows, cols);
+        gather((r0, panel) -> System.arraycopy(panel.data, 0, result.data, r0 * cols, panel.data.length));
+        return result;
+    }
+
+    /**
+     * Releases the blocks on the workers. Products computed from this matrix can no longer
+     * be rebuilt if their blocks are lost afterwards.
+     */
+    void free(){
+        owner.free(this);
+    }
+
+    // --- BLOCK GEOMETRY, computed in long so huge block sizes cannot overflow ---
+
+    static int blockCount(int size, int blockSize){
+        return (int) ((size + (long) blockSize - 1) / blockSize);
+    }
+
+    static int blockStart(int b, int blockSize){
+        return (int) ((long) b * blockSize);
+    }
+
+    static int blockEnd(int b, int blockSize, int size){
+        return (int) Math.min((long) b * blockSize + blockSize, size);
+    }
+}
@@ -1,4 +1,7 @@
 import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * A custom Matrix library implementation.
@@ -221,6 +224,362 @@ public class Matrix {
         return result;
     }
 
+    // --- FUNCTIONAL OPERATIONS ---
+
+    /**
+     * Callback for forEachIndexed, receives the row, column and value of each element.
+     */
+    interface IndexedConsumer {
+        void accept(int row, int col, double value);
+    }
+
+    // Number of chunks the flat data array is split into for parallel operations
+    private static int chunkCount(int length){
+        int chunks = Runtime.getRuntime().availableProcessors() * 4;
+        return Math.max(1, Math.min(chunks, length));
+    }
+
+    private void checkSameShape(Matrix m){
+        if(rows != m.rows || cols != m.cols) {
+            throw new RuntimeException("The matrices must have the same parameters");
+        }
+    }
+
+    /**
+     * Applies f to every element and returns the results in a new matrix.
+     */
+    Matrix map(DoubleUnaryOperator f){
+        return map(f, new Matrix(rows, cols), false);
+    }
+
+    /**
+     * Applies f to every element and writes the results into out.
+     * Passing this as out performs the operation in place.
+     */
+    Matrix map(DoubleUnaryOperator f, Matrix out){
+        return map(f, out, false);
+    }
+
+    Matrix map(DoubleUnaryOperator f, Matrix out, boolean parallel){
+        checkSameShape(out);
+        double[] src = data;
+        double[] dst = out.data;
+        int n = src.length;
+        if(!parallel){
+            for(int i=0; i<n; i++){
+                dst[i] = f.applyAsDouble(src[i]);
+            }
+            return out;
+        }
+        int chunks = chunkCount(n);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = (int) ((long) n * (c + 1) / chunks);
+            for(int i = (int) ((long) n * c / chunks); i<end; i++){
+                dst[i] = f.applyAsDouble(src[i]);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Combines this matrix with m element by element using f and returns the results in a new matrix.
+     */
+    Matrix zipWith(Matrix m, DoubleBinaryOperator f){
+        return zipWith(m, f, new Matrix(rows, cols), false);
+    }
+
+    /**
+     * Combines this matrix with m element by element using f and writes the results into out.
+     * Passing this (or m) as out performs the operation in place.
+     */
+    Matrix zipWith(Matrix m, DoubleBinaryOperator f, Matrix out){
+        return zipWith(m, f, out, false);
+    }
+
+    Matrix zipWith(Matrix m, DoubleBinaryOperator f, Matrix out, boolean parallel){
+        checkSameShape(m);
+        checkSameShape(out);
+        double[] a = data;
+        double[] b = m.data;
+        double[] dst = out.data;
+        int n = a.length;
+        if(!parallel){
+            for(int i=0; i<n; i++){
+                dst[i] = f.applyAsDouble(a[i], b[i]);
+            }
+            return out;
+        }
+        int chunks = chunkCount(n);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = (int) ((long) n * (c + 1) / chunks);
+            for(int i = (int) ((long) n * c / chunks); i<end; i++){
+                dst[i] = f.applyAsDouble(a[i], b[i]);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Folds all elements into a single value.
+     * In parallel mode op must be associative and identity must be its neutral element.
+     */
+    double reduce(double identity, DoubleBinaryOperator op){
+        return reduce(identity, op, false);
+    }
+
+    double reduce(double identity, DoubleBinaryOperator op, boolean parallel){
+        double[] src = data;
+        int n = src.length;
+        if(!parallel){
+            double result = identity;
+            for(int i=0; i<n; i++){
+                result = op.applyAsDouble(result, src[i]);
+            }
+            return result;
+        }
+        int chunks = chunkCount(n);
+        double[] partial = new double[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = (int) ((long) n * (c + 1) / chunks);
+            double acc = identity;
+            for(int i = (int) ((long) n * c / chunks); i<end; i++){
+                acc = op.applyAsDouble(acc, src[i]);
+            }
+            partial[c] = acc;
+        });
+        double result = identity;
+        for(int c=0; c<chunks; c++){
+            result = op.applyAsDouble(result, partial[c]);
+        }
+        return result;
+    }
+
+    /**
+     * Folds every row into a single value, returning a rows x 1 matrix.
+     */
+    Matrix rowReduce(double identity, DoubleBinaryOperator op){
+        return rowReduce(identity, op, false);
+    }
+
+    Matrix rowReduce(double identity, DoubleBinaryOperator op, boolean parallel){
+        Matrix result = new Matrix(rows, 1);
+        double[] src = data;
+        double[] dst = result.data;
+        int n = cols;
+        IntStream r = IntStream.range(0, rows);
+        (parallel ? r.parallel() : r).forEach(i -> {
+            double acc = identity;
+            int base = i * n;
+            for(int j=0; j<n; j++){
+                acc = op.applyAsDouble(acc, src[base + j]);
+            }
+            dst[i] = acc;
+        });
+        return result;
+    }
+
+    /**
+     * Folds every column into a single value, returning a 1 x cols matrix.
+     * Rows are walked in memory order so each column accumulator is updated sequentially.
+     */
+    Matrix colReduce(double identity, DoubleBinaryOperator op){
+        return colReduce(identity, op, false);
+    }
+
+    Matrix colReduce(double identity, DoubleBinaryOperator op, boolean parallel){
+        Matrix result = new Matrix(1, cols);
+        double[] src = data;
+        double[] dst = result.data;
+        int n = cols;
+        int chunks = parallel ? chunkCount(n) : 1;
+        IntStream c = IntStream.range(0, chunks);
+        (parallel ? c.parallel() : c).forEach(k -> {
+            int start = (int) ((long) n * k / chunks);
+            int end = (int) ((long) n * (k + 1) / chunks);
+            for(int j=start; j<end; j++){
+                dst[j] = identity;
+            }
+            for(int i=0; i<rows; i++){
+                int base = i * n;
+                for(int j=start; j<end; j++){
+                    dst[j] = op.applyAsDouble(dst[j], src[base + j]);
+                }
+            }
+        });
+        return result;
+    }
+
+    double sum(){
+        return reduce(0, Double::sum);
+    }
+
+    double min(){
+        if(data.length == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return reduce(Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    double max(){
+        if(data.length == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return reduce(Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    /**
+     * Returns the position of the largest element as {row, col}.
+     * Elements are ordered like Math.max: NaN counts as the largest value and 0.0 as larger than -0.0,
+     * so the result always points at the value max() returns. The first occurrence wins on ties.
+     */
+    int[] argmax(){
+        return argmax(false);
+    }
+
+    int[] argmax(boolean parallel){
+        if(data.length == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        double[] src = data;
+        int n = src.length;
+        int best = 0;
+        if(!parallel){
+            for(int i=1; i<n; i++){
+                if(Double.compare(src[i], src[best]) > 0){
+                    best = i;
+                }
+            }
+            return new int[]{best / cols, best % cols};
+        }
+        int chunks = chunkCount(n);
+        int[] partial = new int[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = (int) ((long) n * c / chunks);
+            int end = (int) ((long) n * (c + 1) / chunks);
+            int local = start;
+            for(int i=start + 1; i<end; i++){
+                if(Double.compare(src[i], src[local]) > 0){
+                    local = i;
+                }
+            }
+            partial[c] = local;
+        });
+        // Chunks are combined in order, so the first occurrence still wins on ties
+        for(int c=1; c<chunks; c++){
+            if(Double.compare(src[partial[c]], src[best]) > 0){
+                best = partial[c];
+            }
+        }
+        return new int[]{best / cols, best % cols};
+    }
+
+    Matrix rowSum(){
+        return rowReduce(0, Double::sum);
+    }
+
+    Matrix colSum(){
+        return colReduce(0, Double::sum);
+    }
+
+    Matrix rowMin(){
+        if(cols == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return rowReduce(Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    Matrix colMin(){
+        if(rows == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return colReduce(Double.POSITIVE_INFINITY, Math::min);
+    }
+
+    Matrix rowMax(){
+        if(cols == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return rowReduce(Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    Matrix colMax(){
+        if(rows == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        return colReduce(Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    /**
+     * Returns the column index of the largest element in every row, ordered as in argmax().
+     */
+    int[] rowArgmax(){
+        return rowArgmax(false);
+    }
+
+    int[] rowArgmax(boolean parallel){
+        if(cols == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        int[] result = new int[rows];
+        double[] src = data;
+        int n = cols;
+        IntStream r = IntStream.range(0, rows);
+        (parallel ? r.parallel() : r).forEach(i -> {
+            int base = i * n;
+            int best = 0;
+            for(int j=1; j<n; j++){
+                if(Double.compare(src[base + j], src[base + best]) > 0){
+                    best = j;
+                }
+            }
+            result[i] = best;
+        });
+        return result;
+    }
+
+    /**
+     * Returns the row index of the largest element in every column, ordered as in argmax().
+     */
+    int[] colArgmax(){
+        return colArgmax(false);
+    }
+
+    int[] colArgmax(boolean parallel){
+        if(rows == 0){
+            throw new RuntimeException("Empty matrix");
+        }
+        int[] result = new int[cols];
+        double[] src = data;
+        int n = cols;
+        int chunks = parallel ? chunkCount(n) : 1;
+        IntStream c = IntStream.range(0, chunks);
+        (parallel ? c.parallel() : c).forEach(k -> {
+            int start = (int) ((long) n * k / chunks);
+            int end = (int) ((long) n * (k + 1) / chunks);
+            for(int i=1; i<rows; i++){
+                int base = i * n;
+                for(int j=start; j<end; j++){
+                    if(Double.compare(src[base + j], src[result[j] * n + j]) > 0){
+                        result[j] = i;
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Calls action for every element in row-major order.
+     */
+    void forEachIndexed(IndexedConsumer action){
+        int idx = 0;
+        for(int i=0; i<rows; i++){
+            for(int j=0; j<cols; j++){
+                action.accept(i, j, data[idx++]);
+            }
+        }
+    }
+
     // --- ALGEBRAIC OPERATIONS ---
 
     /**
@@ -0,0 +1,603 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Worker process for DistributedDot.
+ * Keeps the matrix blocks it is given and runs the SUMMA k-steps for the grid positions it plays.
+ * Panels are exchanged directly with the workers of the same process row (A) and column (B),
+ * so the coordinator only sends the operands once and never relays panels.
+ *
+ * Usage: java MatrixWorker [port]   (port 0 or no argument picks a free port)
+ * The chosen port is printed to stdout as "PORT <n>" once the worker is ready.
+ * The worker exits when the process that started it exits.
+ */
+public class MatrixWorker {
+    // First byte of every connection
+    static final byte CONTROL = 1;  // coordinator commands, each answered once
+    static final byte RUN = 2;      // Plan, then PROGRESS/DONE/FAILED replies; closing it aborts the run
+    static final byte PEER = 3;     // long runId, int toPosition, then panels until END_OF_PANELS
+
+    // Control commands
+    static final byte PUT = 10;     // long id, int bi, int bj, block: replies ACK
+    static final byte GET = 11;     // long id, int bi, int bj: replies BLOCK block or MISSING
+    static final byte FREE = 12;    // long id: replies ACK
+    static final byte PING = 13;    // replies ACK
+
+    // Replies
+    static final byte ACK = 20;
+    static final byte BLOCK = 21;
+    static final byte MISSING = 22;
+    static final byte PROGRESS = 23; // int position, int step
+    static final byte DONE = 24;     // int position
+    static final byte FAILED = 25;   // int position, UTF message
+
+    // Peer panels: int step, byte kind, int count, blocks
+    static final byte PANEL_A = 0;
+    static final byte PANEL_B = 1;
+    static final int END_OF_PANELS = -1;
+
+    // How many k-steps a peer may send ahead of the step being computed
+    static final int LOOKAHEAD = 2;
+
+    // Blocks kept by this worker: matrix id -> cell(bi, bj) -> block
+    static final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Matrix>> store = new ConcurrentHashMap<>();
+    // Active runs: run id -> grid position -> role
+    static final ConcurrentHashMap<Long, ConcurrentHashMap<Integer, Role>> runs = new ConcurrentHashMap<>();
+    static final Set<Long> aborted = ConcurrentHashMap.newKeySet();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        // Do not outlive a coordinator that dies without closing us
+        ProcessHandle.current().parent().ifPresent(p -> p.onExit().thenRun(() -> System.exit(0)));
+
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        System.out.println("PORT " + server.getLocalPort());
+        System.out.flush();
+
+        while (true) {
+            Socket socket = server.accept();
+            Thread t = new Thread(() -> serve(socket));
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Handles one connection until it is closed.
+     */
+    static void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            byte type = in.readByte();
+            if (type == CONTROL) {
+                control(in, out);
+            } else if (type == RUN) {
+                run(in, out);
+            } else if (type == PEER) {
+                peer(s, in);
+            } else {
+                throw new IOException("Unknown connection type " + type);
+            }
+        } catch (IOException e) {
+            // Connection dropped or protocol error, the coordinator recovers from its side
+        }
+    }
+
+    static void control(DataInputStream in, DataOutputStream out) throws IOException {
+        while (true) {
+            byte op;
+            try {
+                op = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            if (op == PUT) {
+                long id = in.readLong();
+                long cell = cell(in.readInt(), in.readInt());
+                Matrix block = readBlock(in);
+                store.computeIfAbsent(id, k -> new ConcurrentHashMap<>()).put(cell, block);
+                out.writeByte(ACK);
+            } else if (op == GET) {
+                Matrix block = lookup(in.readLong(), in.readInt(), in.readInt());
+                if (block == null) {
+                    out.writeByte(MISSING);
+                } else {
+                    out.writeByte(BLOCK);
+                    writeBlock(out, block);
+                }
+            } else if (op == FREE) {
+                store.remove(in.readLong());
+                out.writeByte(ACK);
+            } else if (op == PING) {
+                out.writeByte(ACK);
+            } else {
+                throw new IOException("Unknown opcode " + op);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Starts a role thread for every position this worker plays and keeps the run alive
+     * until the coordinator closes the connection.
+     */
+    static void run(DataInputStream in, DataOutputStream out) throws IOException {
+        Plan plan = Plan.read(in);
+        try {
+            for (int position : plan.mine) {
+                Role role = role(plan.runId, position);
+                Thread t = new Thread(() -> role.execute(plan, out));
+                t.setDaemon(true);
+                t.start();
+            }
+            while (in.read() >= 0) {
+                // Nothing else is sent on a run connection
+            }
+        } finally {
+            abort(plan.runId);
+        }
+    }
+
+    /**
+     * Receives panels from another worker into the inbox of one role.
+     */
+    static void peer(Socket s, DataInputStream in) throws IOException {
+        Role role = role(in.readLong(), in.readInt());
+        role.track(s);
+        try {
+            while (true) {
+                int step = in.readInt();
+                if (step == END_OF_PANELS) {
+                    return;
+                }
+                byte kind = in.readByte();
+                // Leave the panel in the socket until the role gets close; this throttles the sender
+                role.await(step);
+                int count = in.readInt();
+                if (count < 0) {
+                    throw new IOException("Invalid panel size " + count);
+                }
+                List<Matrix> blocks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    blocks.add(readBlock(in));
+                }
+                role.put(step, kind, blocks);
+            }
+        } catch (IOException e) {
+            role.fail("Lost a peer connection: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    static Role role(long runId, int position) {
+        Role role = runs.computeIfAbsent(runId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(position, k -> new Role(runId, position));
+        if (aborted.contains(runId)) {
+            runs.remove(runId);
+            role.fail("Run aborted");
+        }
+        return role;
+    }
+
+    static void abort(long runId) {
+        aborted.add(runId);
+        Map<Integer, Role> roles = runs.remove(runId);
+        if (roles != null) {
+            for (Role role : roles.values()) role.fail("Run aborted");
+        }
+    }
+
+    static long cell(int bi, int bj) {
+        return ((long) bi << 32) | (bj & 0xffffffffL);
+    }
+
+    static Matrix lookup(long id, int bi, int bj) {
+        Map<Long, Matrix> blocks = store.get(id);
+        return blocks == null ? null : blocks.get(cell(bi, bj));
+    }
+
+    /**
+     * Block indices b < count with b mod grid == index, i.e. the block rows or columns one grid position owns.
+     */
+    static int[] owned(int count, int index, int grid) {
+        int n = count > index ? (count - index - 1) / grid + 1 : 0;
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = index + i * grid;
+        }
+        return result;
+    }
+
+    /**
+     * Parameters of one distributed multiplication C = A * B, sent to every worker taking part.
+     */
+    static final class Plan {
+        long runId;
+        int gridRows;
+        int gridCols;
+        int timeoutMillis;
+        long idA;
+        long idB;
+        long idC;
+        int m;
+        int k;
+        int n;
+        int blockSize;
+        InetSocketAddress[] hosts;  // worker playing each grid position
+        int[] mine;                 // positions played by the receiving worker
+
+        /**
+         * Writes the plan for a worker that plays the given positions.
+         */
+        void write(DataOutputStream out, int[] mine) throws IOException {
+            out.writeLong(runId);
+            out.writeInt(gridRows);
+            out.writeInt(gridCols);
+            out.writeInt(timeoutMillis);
+            out.writeLong(idA);
+            out.writeLong(idB);
+            out.writeLong(idC);
+            out.writeInt(m);
+            out.writeInt(k);
+            out.writeInt(n);
+            out.writeInt(blockSize);
+            for (InetSocketAddress host : hosts) {
+                out.writeUTF(host.getHostString());
+                out.writeInt(host.getPort());
+            }
+            out.writeInt(mine.length);
+            for (int position : mine) out.writeInt(position);
+        }
+
+        static Plan read(DataInputStream in) throws IOException {
+            Plan p = new Plan();
+            p.runId = in.readLong();
+            p.gridRows = in.readInt();
+            p.gridCols = in.readInt();
+            p.timeoutMillis = in.readInt();
+            p.idA = in.readLong();
+            p.idB = in.readLong();
+            p.idC = in.readLong();
+            p.m = in.readInt();
+            p.k = in.readInt();
+            p.n = in.readInt();
+            p.blockSize = in.readInt();
+            if (p.gridRows < 1 || p.gridCols < 1 || p.blockSize < 1 || p.m < 0 || p.k < 0 || p.n < 0) {
+                throw new IOException("Invalid run plan");
+            }
+            p.hosts = new InetSocketAddress[p.gridRows * p.gridCols];
+            for (int i = 0; i < p.hosts.length; i++) {
+                p.hosts[i] = new InetSocketAddress(in.readUTF(), in.readInt());
+            }
+            p.mine = new int[in.readInt()];
+            for (int i = 0; i < p.mine.length; i++) {
+                p.mine[i] = in.readInt();
+                if (p.mine[i] < 0 || p.mine[i] >= p.hosts.length) {
+                    throw new IOException("Invalid grid position " + p.mine[i]);
+                }
+            }
+            return p;
+        }
+    }
+
+    /**
+     * One grid position of one run: accumulates its C blocks over all k-steps while a sender
+     * thread pushes the A and B panels it owns to its row and column peers.
+     */
+    static final class Role {
+        final long runId;
+        final int position;
+        private final Map<Long, List<Matrix>> inbox = new HashMap<>();
+        private final List<Socket> sockets = new ArrayList<>();
+        private int step;
+        private String failure;
+
+        Role(long runId, int position) {
+            this.runId = runId;
+            this.position = position;
+        }
+
+        void execute(Plan p, DataOutputStream out) {
+            Thread sender = new Thread(() -> {
+                try {
+                    send(p);
+                } catch (IOException e) {
+                    fail("Sending panels failed: " + e.getMessage());
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+            try {
+                Matrix[][] c = compute(p, out);
+                sender.join();
+                synchronized (this) {
+                    if (failure != null) throw new IOException(failure);
+                }
+                int[] rows = owned(DistributedMatrix.blockCount(p.m, p.blockSize), position / p.gridCols, p.gridRows);
+                int[] cols = owned(DistributedMatrix.blockCount(p.n, p.blockSize), position % p.gridCols, p.gridCols);
+                ConcurrentHashMap<Long, Matrix> blocks = store.computeIfAbsent(p.idC, k -> new ConcurrentHashMap<>());
+                for (int i = 0; i < rows.length; i++) {
+                    for (int j = 0; j < cols.length; j++) {
+                        blocks.put(cell(rows[i], cols[j]), c[i][j]);
+                    }
+                }
+                reply(out, DONE, -1);
+            } catch (IOException | InterruptedException e) {
+                fail(e.getMessage());
+                replyFailed(out, e.getMessage());
+            } catch (RuntimeException | Error e) {
+                fail(e.toString());
+                replyFailed(out, e.toString());
+                throw e;
+            }
+        }
+
+        private Matrix[][] compute(Plan p, DataOutputStream out) throws IOException {
+            int r = position / p.gridCols;
+            int c = position % p.gridCols;
+            int bs = p.blockSize;
+            int[] rows = owned(DistributedMatrix.blockCount(p.m, bs), r, p.gridRows);
+            int[] cols = owned(DistributedMatrix.blockCount(p.n, bs), c, p.gridCols);
+            int steps = DistributedMatrix.blockCount(p.k, bs);
+
+            Matrix[][] acc = new Matrix[rows.length][cols.length];
+            for (int i = 0; i < rows.length; i++) {
+                for (int j = 0; j < cols.length; j++) {
+                    acc[i][j] = new Matrix(DistributedMatrix.blockEnd(rows[i], bs, p.m) - DistributedMatrix.blockStart(rows[i], bs),
+                            DistributedMatrix.blockEnd(cols[j], bs, p.n) - DistributedMatrix.blockStart(cols[j], bs));
+                }
+            }
+
+            for (int bk = 0; bk < steps; bk++) {
+                List<Matrix> a = bk % p.gridCols == c ? local(p.idA, rows, bk, true) : take(bk, PANEL_A);
+                List<Matrix> b = bk % p.gridRows == r ? local(p.idB, cols, bk, false) : take(bk, PANEL_B);
+                if (a.size() != rows.length || b.size() != cols.length) {
+                    throw new IOException("Panel does not match the grid");
+                }
+                for (int i = 0; i < rows.length; i++) {
+                    for (int j = 0; j < cols.length; j++) {
+                        Matrix ai = a.get(i);
+                        Matrix bj = b.get(j);
+                        if (ai.rows != acc[i][j].rows || bj.cols != acc[i][j].cols || ai.cols != bj.rows) {
+                            throw new IOException("Panel does not match the result block");
+                        }
+                        multiplyAdd(ai, bj, acc[i][j]);
+                    }
+                }
+                advance();
+                reply(out, PROGRESS, bk);
+            }
+            return acc;
+        }
+
+        /**
+         * Pushes the A panels this position owns along its process row and its B panels along its process column.
+         */
+        private void send(Plan p) throws IOException {
+            int r = position / p.gridCols;
+            int c = position % p.gridCols;
+            int bs = p.blockSize;
+            int[] rows = owned(DistributedMatrix.blockCount(p.m, bs), r, p.gridRows);
+            int[] cols = owned(DistributedMatrix.blockCount(p.n, bs), c, p.gridCols);
+            int steps = DistributedMatrix.blockCount(p.k, bs);
+            DataOutputStream[] peers = new DataOutputStream[p.hosts.length];
+
+            for (int bk = 0; bk < steps; bk++) {
+                if (bk % p.gridCols == c) {
+                    List<Matrix> a = local(p.idA, rows, bk, true);
+                    for (int c2 = 0; c2 < p.gridCols; c2++) {
+                        if (c2 != c) sendPanel(peer(p, peers, r * p.gridCols + c2), bk, PANEL_A, a);
+                    }
+                }
+                if (bk % p.gridRows == r) {
+                    List<Matrix> b = local(p.idB, cols, bk, false);
+                    for (int r2 = 0; r2 < p.gridRows; r2++) {
+                        if (r2 != r) sendPanel(peer(p, peers, r2 * p.gridCols + c), bk, PANEL_B, b);
+                    }
+                }
+            }
+            for (DataOutputStream peer : peers) {
+                if (peer != null) {
+                    peer.writeInt(END_OF_PANELS);
+                    peer.flush();
+                }
+            }
+        }
+
+        private DataOutputStream peer(Plan p, DataOutputStream[] peers, int target) throws IOException {
+            if (peers[target] == null) {
+                Socket s = new Socket();
+                track(s);
+                s.connect(p.hosts[target], p.timeoutMillis);
+                s.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                out.writeByte(PEER);
+                out.writeLong(runId);
+                out.writeInt(target);
+                peers[target] = out;
+            }
+            return peers[target];
+        }
+
+        private static void sendPanel(DataOutputStream out, int step, byte kind, List<Matrix> blocks) throws IOException {
+            out.writeInt(step);
+            out.writeByte(kind);
+            out.writeInt(blocks.size());
+            for (Matrix block : blocks) writeBlock(out, block);
+            out.flush();
+        }
+
+        /**
+         * Stored blocks (index, bk) of A or (bk, index) of B.
+         */
+        private static List<Matrix> local(long id, int[] indices, int bk, boolean isA) throws IOException {
+            List<Matrix> result = new ArrayList<>(indices.length);
+            for (int index : indices) {
+                Matrix block = isA ? lookup(id, index, bk) : lookup(id, bk, index);
+                if (block == null) {
+                    throw new IOException(String.format("Missing block of matrix %d", id));
+                }
+                result.add(block);
+            }
+            return result;
+        }
+
+        private void reply(DataOutputStream out, byte op, int step) throws IOException {
+            synchronized (out) {
+                out.writeByte(op);
+                out.writeInt(position);
+                if (op == PROGRESS) out.writeInt(step);
+                out.flush();
+            }
+        }
+
+        private void replyFailed(DataOutputStream out, String message) {
+            try {
+                synchronized (out) {
+                    out.writeByte(FAILED);
+                    out.writeInt(position);
+                    out.writeUTF(String.valueOf(message));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Run connection already gone, the coordinator notices on its own
+            }
+        }
+
+        private static long key(int step, byte kind) {
+            return (long) step * 2 + kind;
+        }
+
+        synchronized void await(int step) throws IOException {
+            while (failure == null && step > this.step + LOOKAHEAD) waitUninterrupted();
+            if (failure != null) throw new IOException(failure);
+        }
+
+        synchronized void put(int step, byte kind, List<Matrix> blocks) {
+            inbox.put(key(step, kind), blocks);
+            notifyAll();
+        }
+
+        private synchronized List<Matrix> take(int step, byte kind) throws IOException {
+            long key = key(step, kind);
+            while (failure == null && !inbox.containsKey(key)) waitUninterrupted();
+            if (failure != null) throw new IOException(failure);
+            return inbox.remove(key);
+        }
+
+        private synchronized void advance() {
+            step++;
+            notifyAll();
+        }
+
+        private void waitUninterrupted() throws IOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+
+        /**
+         * Registers a peer socket so that failing the role unblocks any read or write on it.
+         */
+        void track(Socket s) throws IOException {
+            synchronized (this) {
+                if (failure == null) {
+                    sockets.add(s);
+                    return;
+                }
+            }
+            s.close();
+            throw new IOException("Run aborted");
+        }
+
+        void fail(String reason) {
+            List<Socket> toClose;
+            synchronized (this) {
+                if (failure == null) failure = String.valueOf(reason);
+                inbox.clear();
+                notifyAll();
+                toClose = new ArrayList<>(sockets);
+                sockets.clear();
+            }
+            for (Socket s : toClose) {
+                try {
+                    s.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes c += a * b over the flat arrays in i-k-j order so the inner loop walks memory sequentially.
+     */
+    static void multiplyAdd(Matrix a, Matrix b, Matrix c) {
+        int n = a.cols;
+        int m = c.cols;
+        for (int i = 0; i < a.rows; i++) {
+            int cBase = i * m;
+            for (int k = 0; k < n; k++) {
+                double v = a.data[i * n + k];
+                int bBase = k * m;
+                for (int j = 0; j < m; j++) {
+                    c.data[cBase + j] += v * b.data[bBase + j];
+                }
+            }
+        }
+    }
+
+    // --- WIRE FORMAT: int rows, int cols, rows*cols big-endian doubles ---
+
+    static void writeBlock(DataOutputStream out, Matrix m) throws IOException {
+        writeBlock(out, m, 0, m.rows, 0, m.cols);
+    }
+
+    /**
+     * Writes the sub-matrix [r0, r1) x [c0, c1) of m straight from its data array, one row at a time.
+     */
+    static void writeBlock(DataOutputStream out, Matrix m, int r0, int r1, int c0, int c1) throws IOException {
+        int width = c1 - c0;
+        out.writeInt(r1 - r0);
+        out.writeInt(width);
+        ByteBuffer buf = ByteBuffer.allocate(width * Double.BYTES);
+        for (int i = r0; i < r1; i++) {
+            buf.clear();
+            buf.asDoubleBuffer().put(m.data, i * m.cols + c0, width);
+            out.write(buf.array());
+        }
+    }
+
+    static Matrix readBlock(DataInputStream in) throws IOException {
+        int rows = in.readInt();
+        int cols = in.readInt();
+        if (rows < 0 || cols < 0 || (long) rows * cols * Double.BYTES > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Invalid block shape %d x %d", rows, cols));
+        }
+        Matrix m = new Matrix(rows, cols);
+        byte[] bytes = new byte[m.data.length * Double.BYTES];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asDoubleBuffer().get(m.data);
+        return m;
+    }
+}
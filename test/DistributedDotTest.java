@@ -0,0 +1,152 @@
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for DistributedDot.
+ * Workers are launched as local processes, so these tests exercise the real socket protocol.
+ */
+
+public class DistributedDotTest {
+
+    @org.junit.Test(timeout = 60000)
+    public void dot() throws Exception {
+        Matrix m1 = Matrix.random(70, 45);
+        Matrix m2 = Matrix.random(45, 33);
+        try (DistributedDot d = DistributedDot.launchLocal(4).blockSize(8)) {
+            assertArrayEquals(new int[]{2,2}, d.gridShape());
+            Matrix expected = d.dot(m1, m2);
+            assertEquals(70, expected.rows);
+            assertEquals(33, expected.cols);
+            assertArrayEquals(m1.dot(m2).data, expected.data, 0.001);
+            Matrix m3 = new Matrix(new double[][]{{3,1},{2,1},{1,0}});
+            Exception ex = assertThrows( RuntimeException.class, () -> d.dot(m3, m3));
+            assertTrue(ex.getMessage().contains("Incompatible shapes"));
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void hugeBlockSize() throws Exception {
+        Matrix m = new Matrix(new double[][]{{1,2},{3,4}});
+        try (DistributedDot d = DistributedDot.launchLocal(1).blockSize(Integer.MAX_VALUE)) {
+            assertArrayEquals(new double[]{7,10,15,22}, d.dot(m, m).data, 0.001);
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void nonFinite() throws Exception {
+        Matrix m1 = new Matrix(new double[][]{{0,1}});
+        Matrix m2 = new Matrix(new double[][]{{Double.POSITIVE_INFINITY},{2}});
+        try (DistributedDot d = DistributedDot.launchLocal(2).blockSize(1)) {
+            assertTrue(Double.isNaN(m1.dot(m2).data[0]));
+            assertTrue(Double.isNaN(d.dot(m1, m2).data[0]));
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void distributedMatrices() throws Exception {
+        try (DistributedDot d = DistributedDot.launchLocal(3).blockSize(16)) {
+            // The source generates blocks on demand, so the operand never exists in this JVM as a whole
+            DistributedMatrix a = d.scatter(50, 40, (r0, r1, c0, c1) -> {
+                Matrix block = new Matrix(r1 - r0, c1 - c0);
+                block.forEachIndexed((i, j, v) -> block.set(i, j, (r0 + i) - 0.5 * (c0 + j)));
+                return block;
+            });
+            Matrix m2 = Matrix.random(40, 60);
+            Matrix m3 = Matrix.random(60, 20);
+            DistributedMatrix c = a.dot(d.scatter(m2)).dot(d.scatter(m3));
+            assertArrayEquals(new int[]{50,20}, c.shape());
+
+            List<Integer> starts = new ArrayList<>();
+            Matrix expected = new Matrix(50, 20);
+            c.gather((r0, panel) -> {
+                starts.add(r0);
+                System.arraycopy(panel.data, 0, expected.data, r0 * 20, panel.data.length);
+            });
+            assertEquals(List.of(0, 16, 32, 48), starts);
+            assertArrayEquals(a.toMatrix().dot(m2).dot(m3).data, expected.data, 0.001);
+
+            a.free();
+            Exception ex = assertThrows( RuntimeException.class, a::toMatrix);
+            assertTrue(ex.getMessage().contains("Matrix has been freed"));
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void workerFailure() throws Exception {
+        Matrix m1 = Matrix.random(50, 40);
+        Matrix m2 = Matrix.random(40, 60);
+        try (DistributedDot d = DistributedDot.launchLocal(3).blockSize(8)) {
+            d.processes().get(0).destroyForcibly().waitFor();
+            d.processes().get(2).destroyForcibly().waitFor();
+            Matrix expected = d.dot(m1, m2);
+            assertArrayEquals(m1.dot(m2).data, expected.data, 0.001);
+            assertEquals(1, d.liveWorkers());
+            d.processes().get(1).destroyForcibly().waitFor();
+            Exception ex = assertThrows( RuntimeException.class, () -> d.dot(m1, m2));
+            assertTrue(ex.getMessage().contains("All workers failed"));
+            assertNotNull(ex.getCause());
+            assertEquals(2, ex.getSuppressed().length);
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void workerKilledMidRun() throws Exception {
+        // Large K and small blocks give every worker many k-steps to report
+        Matrix m1 = Matrix.random(64, 4000);
+        Matrix m2 = Matrix.random(4000, 64);
+        try (DistributedDot d = DistributedDot.launchLocal(2).blockSize(16)) {
+            AtomicBoolean killed = new AtomicBoolean();
+            d.onProgress((worker, position, step) -> {
+                if(worker == 0 && step == 2 && killed.compareAndSet(false, true)) {
+                    try {
+                        d.processes().get(0).destroyForcibly().waitFor();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            Matrix expected = d.dot(m1, m2);
+            assertTrue(killed.get());
+            assertEquals(1, d.liveWorkers());
+            assertArrayEquals(m1.dot(m2).data, expected.data, 0.001);
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void workerStalledMidRun() throws Exception {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        Matrix m1 = Matrix.random(64, 4000);
+        Matrix m2 = Matrix.random(4000, 64);
+        try (DistributedDot d = DistributedDot.launchLocal(2).blockSize(16).timeout(1000)) {
+            AtomicBoolean stopped = new AtomicBoolean();
+            // Suspend the worker without killing it, so its sockets stay open but never answer
+            d.onProgress((worker, position, step) -> {
+                if(worker == 0 && step == 2 && stopped.compareAndSet(false, true)) {
+                    try {
+                        long pid = d.processes().get(0).pid();
+                        assertEquals(0, new ProcessBuilder("kill", "-STOP", Long.toString(pid)).start().waitFor());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            Matrix expected = d.dot(m1, m2);
+            assertTrue(stopped.get());
+            assertEquals(1, d.liveWorkers());
+            assertArrayEquals(m1.dot(m2).data, expected.data, 0.001);
+        }
+    }
+
+    @org.junit.Test(timeout = 60000)
+    public void invalidSettings() throws Exception {
+        try (DistributedDot d = DistributedDot.launchLocal(1)) {
+            Exception ex = assertThrows( RuntimeException.class, () -> d.timeout(-1));
+            assertTrue(ex.getMessage().contains("Timeout must be positive"));
+            Exception ex2 = assertThrows( RuntimeException.class, () -> d.blockSize(0));
+            assertTrue(ex2.getMessage().contains("Block size must be positive"));
+        }
+    }
+}
@@ -296,4 +296,83 @@ public class MatrixTest {
         Exception ex = assertThrows( RuntimeException.class, m3::determinant);
         assertTrue(ex.getMessage().contains("It has to be a square matrix"));
     }
-}
\ No newline at end of file
+
+    @org.junit.Test
+    public void map() {
+        Matrix m = new Matrix(new double[][]{{1,-2},{3,-4}});
+        Matrix expected = m.map(x -> Math.max(0, x));
+        assertArrayEquals(new double[]{1,0,3,0}, expected.data, 0.001);
+        assertArrayEquals(new double[]{1,-2,3,-4}, m.data, 0.001);
+        Matrix r = Matrix.random(50, 40);
+        Matrix expected2 = r.map(x -> 2 * x, new Matrix(50, 40), true);
+        assertArrayEquals(r.mul(2).data, expected2.data, 0.001);
+        m.map(Math::abs, m);
+        assertArrayEquals(new double[]{1,2,3,4}, m.data, 0.001);
+        Exception ex = assertThrows( RuntimeException.class, () -> m.map(x -> x, new Matrix(3, 3)));
+        assertTrue(ex.getMessage().contains("The matrices must have the same parameters"));
+    }
+
+    @org.junit.Test
+    public void zipWith() {
+        Matrix m = new Matrix(new double[][]{{1,2},{3,4}});
+        Matrix m2 = new Matrix(new double[][]{{0,1},{2,3}});
+        Matrix expected = m.zipWith(m2, (a, b) -> a * b + 1);
+        assertArrayEquals(new double[]{1,3,7,13}, expected.data, 0.001);
+        Matrix r = Matrix.random(30, 30);
+        Matrix expected2 = r.zipWith(r, Double::sum, new Matrix(30, 30), true);
+        assertArrayEquals(r.mul(2).data, expected2.data, 0.001);
+        Matrix m3 = new Matrix(new double[][]{{0,1, 4},{2,3}});
+        Exception ex = assertThrows( RuntimeException.class, () -> m.zipWith(m3, Double::sum));
+        assertTrue(ex.getMessage().contains("The matrices must have the same parameters"));
+    }
+
+    @org.junit.Test
+    public void reduce() {
+        Matrix m = new Matrix(new double[][]{{1,5,2},{7,3,4}});
+        assertEquals(22, m.sum(), 0.001);
+        assertEquals(1, m.min(), 0.001);
+        assertEquals(7, m.max(), 0.001);
+        assertArrayEquals(new int[]{1,0}, m.argmax());
+        assertEquals(840, m.reduce(1, (a, b) -> a * b, true), 0.001);
+        Matrix r = Matrix.random(100, 70);
+        assertEquals(r.sum(), r.reduce(0, Double::sum, true), 0.001);
+        assertArrayEquals(r.argmax(), r.argmax(true));
+        Matrix n = new Matrix(new double[][]{{1,Double.NaN},{Double.NaN,2}});
+        assertTrue(Double.isNaN(n.max()));
+        assertArrayEquals(new int[]{0,1}, n.argmax());
+        assertArrayEquals(new int[]{0,1}, n.argmax(true));
+    }
+
+    @org.junit.Test
+    public void rowColReduce() {
+        Matrix m = new Matrix(new double[][]{{1,5,2},{7,3,4}});
+        assertArrayEquals(new double[]{8,14}, m.rowSum().data, 0.001);
+        assertArrayEquals(new double[]{8,8,6}, m.colSum().data, 0.001);
+        assertArrayEquals(new double[]{1,3}, m.rowMin().data, 0.001);
+        assertArrayEquals(new double[]{1,3,2}, m.colMin().data, 0.001);
+        assertArrayEquals(new double[]{5,7}, m.rowMax().data, 0.001);
+        assertArrayEquals(new double[]{7,5,4}, m.colMax().data, 0.001);
+        assertArrayEquals(new int[]{1,0}, m.rowArgmax());
+        assertArrayEquals(new int[]{1,0,1}, m.colArgmax());
+        Matrix r = Matrix.random(60, 45);
+        assertArrayEquals(r.rowSum().data, r.rowReduce(0, Double::sum, true).data, 0.001);
+        assertArrayEquals(r.colSum().data, r.colReduce(0, Double::sum, true).data, 0.001);
+        assertArrayEquals(r.rowArgmax(), r.rowArgmax(true));
+        assertArrayEquals(r.colArgmax(), r.colArgmax(true));
+        Matrix n = new Matrix(new double[][]{{1,Double.NaN},{Double.NaN,2}});
+        assertArrayEquals(new int[]{1,0}, n.rowArgmax());
+        assertArrayEquals(new int[]{1,0}, n.colArgmax(true));
+        Exception ex = assertThrows( RuntimeException.class, () -> new Matrix(2, 0).rowMax());
+        assertTrue(ex.getMessage().contains("Empty matrix"));
+        Exception ex2 = assertThrows( RuntimeException.class, () -> new Matrix(0, 2).colMin());
+        assertTrue(ex2.getMessage().contains("Empty matrix"));
+    }
+
+    @org.junit.Test
+    public void forEachIndexed() {
+        Matrix m = new Matrix(new double[][]{{1,2},{3,4}});
+        double[] weighted = new double[1];
+        m.forEachIndexed((i, j, v) -> weighted[0] += (i * 2 + j) * v);
+        assertEquals(2 + 6 + 12, weighted[0], 0.001);
+    }
+}